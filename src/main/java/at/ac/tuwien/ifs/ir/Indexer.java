@@ -1,15 +1,19 @@
 package at.ac.tuwien.ifs.ir;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +36,7 @@ public class Indexer {
     private static String blockDir = "blocks";
     private static String blockFile = "block";
     private static String extension = ".arff.gz";
+    static String dfExtension = ".df";
 
     private String source = ".";
     private String target = ".";
@@ -39,6 +44,13 @@ public class Indexer {
     private boolean stemming = false;
     private int upper = -1;
     private int lower = -1;
+    private int maxDf = -1;
+    private int postings = -1;
+
+    // vocabulary remaining after global pruning, mapping each term to its document frequency
+    private Map<String, Integer> vocabulary;
+    // documents whose postings are kept for the terms truncated by static index pruning
+    private Map<String, Set<Integer>> truncated;
 
     public Indexer() {}
     
@@ -55,14 +67,20 @@ public class Indexer {
         this.lower = lower;
     }
     
+    public Indexer(String source, String target, int blockSize, boolean stemming, int upper, int lower, int maxDf, int postings) {
+        this(source, target, blockSize, stemming, upper, lower);
+        this.maxDf = maxDf;
+        this.postings = postings;
+    }
+    
     public void index() {
         log.info("Started indexing ...");
-        createBlocks();
-        merge();
+        if (createBlocks())
+            merge();
         log.info("Done indexing");
     }
     
-    private void createBlocks() {
+    private boolean createBlocks() {
         log.info("Started creating blocks ...");
         
         Instances instances = null;
@@ -75,17 +93,16 @@ public class Indexer {
             instances = tdl.getDataSet();
         } catch (IOException ioe) {
             log.error("Error loading files", ioe);
-            return;
+            return false;
         }
 
+        if (!prune(instances))
+            return false;
+
         log.info("Processing contents ...");
         // we implement the dictionary as a hash map, alternative would be tree map
         Map<String, Double[]> dictionary = new HashMap<String,Double[]>();
-        WordTokenizer wordTokenizer = new WordTokenizer();
-        wordTokenizer.setDelimiters(wordTokenizer.getDelimiters() + "");
-        wordTokenizer.setDelimiters(wordTokenizer.getDelimiters() + "");
-        wordTokenizer.setDelimiters(wordTokenizer.getDelimiters() + "");
-        wordTokenizer.setDelimiters(wordTokenizer.getDelimiters() + "");
+        WordTokenizer wordTokenizer = createTokenizer();
         SnowballStemmer stemmer = new SnowballStemmer();
         
         int entryCounter = 0;
@@ -94,30 +111,25 @@ public class Indexer {
         // while not all file content (text attribute) is processed
         while (entryCounter < instances.numInstances()) {
 
-            String fileContent = instances.instance(entryCounter).stringValue(0);
-            wordTokenizer.tokenize(fileContent);
-            String token;
+            Map<String, Double> termCounts = countTerms(instances.instance(entryCounter).stringValue(0), wordTokenizer, stemmer);
             
-            // iterate through the tokens of the current file content
-            while (wordTokenizer.hasMoreElements()) {
-                token = wordTokenizer.nextElement().toString().trim().toLowerCase();
+            // iterate through the terms of the current file content
+            for (Map.Entry<String, Double> entry : termCounts.entrySet()) {
+                String term = entry.getKey();
                 
-                // optional stemming
-                if (stemming)
-                    token = stemmer.stem(token);
+                // skip terms pruned from the vocabulary and postings truncated for the term
+                if (!vocabulary.containsKey(term))
+                    continue;
+                Set<Integer> documents = truncated.get(term);
+                if (documents != null && !documents.contains(entryCounter))
+                    continue;
                 
-                // check if dictionary contains term
-                if (dictionary.containsKey(token)) {
-                    Double[] postingsList = dictionary.get(token);
-                    if (postingsList[blockCounter] == null)
-                        postingsList[blockCounter] = new Double(1);
-                    else
-                        postingsList[blockCounter] += 1;
-                } else {
-                    Double[] postingsList = new Double[blockSize];
-                    postingsList[blockCounter] = new Double(1);
-                    dictionary.put(token, postingsList);
-                }                   
+                Double[] postingsList = dictionary.get(term);
+                if (postingsList == null) {
+                    postingsList = new Double[blockSize];
+                    dictionary.put(term, postingsList);
+                }
+                postingsList[blockCounter] = entry.getValue();
             }
             
             entryCounter++;
@@ -126,29 +138,6 @@ public class Indexer {
             // if block size is reached, write the block to disk
             if (entryCounter == instances.numInstances() || blockCounter == blockSize) {
 
-                // optional frequency thresholding
-                if (upper > -1 || lower > -1) {
-                    List<String> removeList = new ArrayList<String>();
-                    for (Iterator<String> i = dictionary.keySet().iterator(); i.hasNext(); ) {
-                        String key = i.next();
-                        Double[] postingsList = dictionary.get(key);
-                        boolean remove = true;
-                        for (int j = 0; j < postingsList.length; j++) {                             
-                            if (postingsList[j] != null)
-                                if((postingsList[j] < lower) ||
-                                            (upper > -1 && postingsList[j] > upper))
-                                    postingsList[j] = null;
-                                else
-                                    remove = false;
-                        }
-                        // all values for the key were thresholded away, so remove the term from the dictionary
-                        if (remove)
-                            removeList.add(key);
-                    }
-                    for (String key : removeList)
-                        dictionary.remove(key);
-                }
-                
                 log.info("Creating block ...");
                 // create a vector for attributes filename, class, and 1 attribute for each term
                 FastVector attributes = new FastVector(dictionary.keySet().size() + 2);
@@ -167,7 +156,7 @@ public class Indexer {
                     block = new Instances(blockFile + entryCounter + extension, attributes, blockSize);
                 } catch (IllegalArgumentException iae) {
                     log.error("Error processing terms as attributes", iae);
-                    return;
+                    return false;
                 }
                 
                 for (int i = 0; i < blockCounter; i++) {
@@ -195,7 +184,7 @@ public class Indexer {
                     log.info("Wrote block to " + filename);
                 } catch (IOException ioe) {
                     log.error("Error saving block to ARFF file", ioe);
-                    return;
+                    return false;
                 }
 
                 dictionary.clear();
@@ -203,6 +192,183 @@ public class Indexer {
             }
         }
         log.info("Done creating blocks");
+        return true;
+    }
+    
+    /**
+     * First pass over the collection computing the document frequency (df) and collection
+     * frequency (cf) of each term. Terms are pruned from the vocabulary if their cf is out of
+     * the lower/upper bounds or if their df exceeds maxDf (stopwords). If postings is set, a
+     * second pass keeps only the postings with the highest BM25 term frequency component for
+     * each remaining term (static index pruning).
+     * As only collection-wide statistics are used, the vocabulary does not depend on the block size.
+     */
+    private boolean prune(Instances instances) {
+        log.info("Started computing collection statistics ...");
+        
+        Map<String, int[]> statistics = new HashMap<String, int[]>();
+        WordTokenizer wordTokenizer = createTokenizer();
+        SnowballStemmer stemmer = new SnowballStemmer();
+        int[] lengths = new int[instances.numInstances()];
+        long totalLength = 0;
+        long totalPostings = 0;
+        
+        for (int i = 0; i < instances.numInstances(); i++) {
+            Map<String, Double> termCounts = countTerms(instances.instance(i).stringValue(0), wordTokenizer, stemmer);
+            
+            for (Map.Entry<String, Double> entry : termCounts.entrySet()) {
+                // df at position 0, cf at position 1
+                int[] statistic = statistics.get(entry.getKey());
+                if (statistic == null) {
+                    statistic = new int[2];
+                    statistics.put(entry.getKey(), statistic);
+                }
+                statistic[0]++;
+                statistic[1] += entry.getValue().intValue();
+                lengths[i] += entry.getValue().intValue();
+            }
+            totalPostings += termCounts.size();
+            totalLength += lengths[i];
+        }
+        
+        vocabulary = new HashMap<String, Integer>();
+        Map<String, PriorityQueue<Posting>> impacts = new HashMap<String, PriorityQueue<Posting>>();
+        long keptPostings = 0;
+        for (Map.Entry<String, int[]> entry : statistics.entrySet()) {
+            int df = entry.getValue()[0];
+            int cf = entry.getValue()[1];
+            if ((lower > -1 && cf < lower)
+                    || (upper > -1 && cf > upper)
+                    || (maxDf > -1 && df > maxDf))
+                continue;
+            vocabulary.put(entry.getKey(), df);
+            
+            // only terms with more postings than allowed need to be truncated
+            if (postings > 0 && df > postings) {
+                impacts.put(entry.getKey(), new PriorityQueue<Posting>(postings));
+                keptPostings += postings;
+            } else
+                keptPostings += df;
+        }
+        
+        truncated = new HashMap<String, Set<Integer>>();
+        if (!impacts.isEmpty()) {
+            log.info("Selecting postings with the highest impact ...");
+            double avgdl = (double) totalLength / (double) instances.numInstances();
+            
+            for (int i = 0; i < instances.numInstances(); i++) {
+                Map<String, Double> termCounts = countTerms(instances.instance(i).stringValue(0), wordTokenizer, stemmer);
+                
+                for (Map.Entry<String, Double> entry : termCounts.entrySet()) {
+                    PriorityQueue<Posting> impact = impacts.get(entry.getKey());
+                    if (impact == null)
+                        continue;
+                    
+                    // the impact of a posting is the term frequency component of the BM25 score,
+                    // as the IDF is the same for all postings of the term
+                    double tf = entry.getValue();
+                    Posting posting = new Posting(tf * (OkapiBM25.k1 + 1)
+                            / (tf + OkapiBM25.k1 * (1 - OkapiBM25.b + OkapiBM25.b * lengths[i] / avgdl)), i);
+                    
+                    // keep the postings with the highest impact in a min heap of the postings size
+                    if (impact.size() < postings)
+                        impact.add(posting);
+                    else if (impact.peek().compareTo(posting) < 0) {
+                        impact.poll();
+                        impact.add(posting);
+                    }
+                }
+            }
+            
+            for (Map.Entry<String, PriorityQueue<Posting>> entry : impacts.entrySet()) {
+                Set<Integer> documents = new HashSet<Integer>();
+                for (Posting posting : entry.getValue())
+                    documents.add(posting.document);
+                truncated.put(entry.getKey(), documents);
+            }
+        }
+        
+        if (postings > 0)
+            log.info("Truncated " + truncated.size() + " terms to " + postings + " postings");
+        log.info("Pruned " + (statistics.size() - vocabulary.size()) + " of " + statistics.size() + " terms and "
+                + (totalPostings - keptPostings) + " of " + totalPostings + " postings ("
+                + String.format("%.1f", totalPostings == 0 ? 0.0 : 100.0 * (totalPostings - keptPostings) / totalPostings)
+                + "% of the postings removed)");
+        
+        if (vocabulary.isEmpty()) {
+            log.error("All terms were pruned, check the pruning options");
+            return false;
+        }
+        
+        // truncated terms lose postings, so the document frequencies of the collection
+        // are stored next to the index for computing the IDF when matching
+        String filename = target + "/" + "index" + dfExtension;
+        try {
+            File file = new File(target);
+            if (!file.exists()) {
+                file.mkdirs();
+            }
+            
+            List<String> sortedTerms = new ArrayList<String>(vocabulary.keySet());
+            Collections.sort(sortedTerms);
+            
+            BufferedWriter out = new BufferedWriter(new FileWriter(filename));
+            for (String term : sortedTerms)
+                out.write(term + "\t" + vocabulary.get(term) + "\n");
+            out.close();
+            log.info("Wrote document frequencies to " + filename);
+        } catch (IOException ioe) {
+            log.error("Error saving document frequencies to file " + filename, ioe);
+            return false;
+        }
+        log.info("Done computing collection statistics");
+        return true;
+    }
+    
+    private WordTokenizer createTokenizer() {
+        WordTokenizer wordTokenizer = new WordTokenizer();
+        wordTokenizer.setDelimiters(wordTokenizer.getDelimiters() + "");
+        wordTokenizer.setDelimiters(wordTokenizer.getDelimiters() + "");
+        wordTokenizer.setDelimiters(wordTokenizer.getDelimiters() + "");
+        wordTokenizer.setDelimiters(wordTokenizer.getDelimiters() + "");
+        return wordTokenizer;
+    }
+    
+    private Map<String, Double> countTerms(String fileContent, WordTokenizer wordTokenizer, SnowballStemmer stemmer) {
+        Map<String, Double> termCounts = new HashMap<String, Double>();
+        wordTokenizer.tokenize(fileContent);
+        String token;
+        
+        // iterate through the tokens of the file content
+        while (wordTokenizer.hasMoreElements()) {
+            token = wordTokenizer.nextElement().toString().trim().toLowerCase();
+            
+            // optional stemming
+            if (stemming)
+                token = stemmer.stem(token);
+            
+            Double count = termCounts.get(token);
+            termCounts.put(token, count == null ? 1.0 : count + 1);
+        }
+        return termCounts;
+    }
+    
+    private class Posting implements Comparable<Posting> {
+
+        public double impact;
+        public int document;
+        public Posting(double impact, int document) {
+            this.impact = impact;
+            this.document = document;
+        }
+
+        // postings with equal impact are ordered by document, so earlier documents are kept
+        @Override
+        public int compareTo(Posting anotherPosting) {
+            if (impact != anotherPosting.impact)
+                return impact < anotherPosting.impact ? -1 : 1;
+            return anotherPosting.document - document;
+        }
     }
     
     private void merge() {
@@ -289,6 +455,9 @@ public class Indexer {
             saver.setCompressOutput(true);
             saver.writeBatch();
             log.info("Wrote index to " + filename);
+            // the size can only be compared against an unpruned index built in a separate run
+            log.info("Index contains " + (index.numAttributes() - 2) + " terms and has a size of "
+                    + new File(filename).length() + " bytes");
         } catch (IOException ioe) {
             log.error("Error saving index to ARFF file", ioe);
             return;
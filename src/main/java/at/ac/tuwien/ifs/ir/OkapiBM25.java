@@ -1,7 +1,9 @@
 package at.ac.tuwien.ifs.ir;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Arrays;
@@ -36,9 +38,16 @@ public class OkapiBM25 {
     
     // store for the computed IDFs of the documents terms
     private Map<String,Double> idfs;
+    // document frequencies of the collection before pruning, null if not available
+    private Map<String,Integer> dfs;
+    
+    // time spent scoring the documents for the queries in nanoseconds
+    private long scoringTime;
+    // number of queries found in the index and scored
+    private int scoredQueries;
 
-    private double k1 = 1.2;
-    private double b = 0.75;
+    static final double k1 = 1.2;
+    static final double b = 0.75;
 
     public OkapiBM25(String indexFile, String source, String target, TextRetrieval.postingListSize postingListSize) {
         this.indexFile = indexFile;
@@ -50,8 +59,16 @@ public class OkapiBM25 {
     public void findSimilar(String[] documentIDs) {        
         log.info("Started Okapi BM25 retrieval ...");
         computeGlobals();
+        loadDocumentFrequencies();
+        scoringTime = 0;
+        scoredQueries = 0;
         for (int i = 0; i < documentIDs.length; i++)
             findSimilar(documentIDs[i], i + 1);
+        // report the query latency to compare pruned against unpruned indexes
+        double elapsed = scoringTime / 1000000.0;
+        log.info("Scored " + scoredQueries + " queries in " + String.format("%.3f", elapsed) + " ms ("
+                + String.format("%.3f", scoredQueries == 0 ? 0.0 : elapsed / scoredQueries)
+                + " ms per query, excluding loading the index and writing the results)");
         log.info("Done Okapi BM25 retrieval");
     }
     
@@ -80,6 +97,7 @@ public class OkapiBM25 {
             for (int i = 0; i < 10; i++)
                 top10Ranks[i] = new Rank(0.0, null);
 
+            long start = System.nanoTime();
             idfs = new HashMap<String,Double>();
             for (int i = 0; i < index.numInstances(); i++) {
                 if (i == queryIndex)
@@ -91,6 +109,8 @@ public class OkapiBM25 {
                     top10Ranks[0] = new Rank(newSimilarity, index.instance(i).stringValue(0));
                 Arrays.sort(top10Ranks);
             }
+            scoringTime += System.nanoTime() - start;
+            scoredQueries++;
             log.info("Found 10 most similar documents for " + documentID);
 
             String filename = target + "/" + postingListSize + "_topic" + topicNumber + "_groupG.txt";
@@ -174,6 +194,33 @@ public class OkapiBM25 {
         log.info("Done computing document lengths");
     }
 
+    private void loadDocumentFrequencies() {
+        dfs = null;
+        if (indexFile == null || !indexFile.contains(".arff"))
+            return;
+        
+        String filename = indexFile.substring(0, indexFile.lastIndexOf(".arff")) + Indexer.dfExtension;
+        if (!new File(filename).exists()) {
+            log.info("No document frequencies found at " + filename + ", computing them from the index");
+            return;
+        }
+        
+        try {
+            Map<String,Integer> documentFrequencies = new HashMap<String,Integer>();
+            BufferedReader in = new BufferedReader(new FileReader(filename));
+            String line;
+            while ((line = in.readLine()) != null) {
+                int separator = line.lastIndexOf('\t');
+                documentFrequencies.put(line.substring(0, separator), new Integer(line.substring(separator + 1)));
+            }
+            in.close();
+            dfs = documentFrequencies;
+            log.info("Loaded document frequencies of " + dfs.size() + " terms from " + filename);
+        } catch (Exception e) {
+            log.error("Error loading document frequencies from file " + filename + ", computing them from the index", e);
+        }
+    }
+
     private double computeBM25Score(Instances index, int queryIndex, int documentIndex) {
 
         double score = 0.0;
@@ -195,10 +242,15 @@ public class OkapiBM25 {
             } else {
                 // compute the IDF for the current term
                 // we use IDF(qi) = log ( N - n(qi) + 0.5 / n(qi) + 0.5)
+                // the document frequency of pruned indexes is taken from before the pruning
                 int containingTerm = 1;
-                for (int j = 0; j < index.numInstances(); j++) {
-                    if (index.instance(j).value(i) > 0)
-                        containingTerm++;
+                if (dfs != null && dfs.containsKey(termName))
+                    containingTerm += dfs.get(termName);
+                else {
+                    for (int j = 0; j < index.numInstances(); j++) {
+                        if (index.instance(j).value(i) > 0)
+                            containingTerm++;
+                    }
                 }
                 idf = Math.log(((double) index.numInstances() - (double) containingTerm + 0.5) / ((double) containingTerm + 0.5));
                 idfs.put(termName, idf);
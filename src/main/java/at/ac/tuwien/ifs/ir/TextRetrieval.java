@@ -49,6 +49,8 @@ public class TextRetrieval {
                     boolean stemming = false;
                     int upper = -1;
                     int lower = -1;
+                    int maxDf = -1;
+                    int postings = -1;
     
                     try {                    
                         for (int i = 1; i < args.length; i=i+2) {
@@ -64,6 +66,10 @@ public class TextRetrieval {
                                 upper = new Integer(args[i+1]);
                             else if (args[i].equals("-l") || args[i].equals("--lower"))
                                 lower = new Integer(args[i+1]);
+                            else if (args[i].equals("-d") || args[i].equals("--maxDf"))
+                                maxDf = new Integer(args[i+1]);
+                            else if (args[i].equals("-p") || args[i].equals("--postings"))
+                                postings = new Integer(args[i+1]);
                             else throw new Exception("Illegal option");
                         }
                     } catch (Exception e) {
@@ -71,7 +77,7 @@ public class TextRetrieval {
                         return;                    
                     }
                     
-                    new Indexer(source, target, blockSize, stemming, upper, lower).index();
+                    new Indexer(source, target, blockSize, stemming, upper, lower, maxDf, postings).index();
                     
                 } else if (args[0].equals("match")) {
                     String indexFile = null;
@@ -112,8 +118,10 @@ public class TextRetrieval {
         log.info("-t --target   <target directory for the index file and the temporary folder>");
         log.info("-b --blockSize <size of the blocks for indexing>");
         log.info("-e --stemming <stemming of words>");
-        log.info("-u --upper    <upper bound for frequency thresholding>");
-        log.info("-l --lower    <lower bound for frequency thresholding>");
+        log.info("-u --upper    <upper bound of the collection frequency for thresholding (changed: was the term count per document)>");
+        log.info("-l --lower    <lower bound of the collection frequency for thresholding (changed: was the term count per document)>");
+        log.info("-d --maxDf    <maximum document frequency, more frequent terms are removed as stopwords>");
+        log.info("-p --postings <maximum number of postings kept per term, ranked by BM25 impact>");
         log.info("match command options include:");
         log.info("-i --indexFile     <ARFF source file containing the index>");
         log.info("-s --source        <source directory for the files to score>");
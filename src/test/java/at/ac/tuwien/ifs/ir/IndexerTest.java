@@ -0,0 +1,131 @@
+package at.ac.tuwien.ifs.ir;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+
+public class IndexerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String[][] documents = {
+            { "a", "1", "common apple apple apple" },
+            { "a", "2", "common apple banana" },
+            { "a", "3", "common banana banana cherry" },
+            { "b", "4", "common cherry cherry date" },
+            { "b", "5", "common date elder" },
+            { "b", "6", "common elder elder elder fig" }
+    };
+
+    private File createCollection() throws IOException {
+        File source = folder.newFolder("source");
+        for (String[] document : documents) {
+            File classDir = new File(source, document[0]);
+            classDir.mkdirs();
+            FileWriter out = new FileWriter(new File(classDir, document[1]));
+            out.write(document[2]);
+            out.close();
+        }
+        return source;
+    }
+
+    private Instances index(File source, String name, int blockSize, int upper, int lower, int maxDf, int postings) throws Exception {
+        File target = folder.newFolder(name);
+        new File(target, "blocks").mkdirs();
+        new Indexer(source.getPath(), target.getPath(), blockSize, false, upper, lower, maxDf, postings).index();
+        return new DataSource(target.getPath() + "/index.arff.gz").getDataSet();
+    }
+
+    private List<String> terms(Instances index) {
+        List<String> terms = new ArrayList<String>();
+        for (int i = 2; i < index.numAttributes(); i++)
+            terms.add(index.attribute(i).name());
+        return terms;
+    }
+
+    private int postings(Instances index, String term) {
+        int count = 0;
+        for (int i = 0; i < index.numInstances(); i++)
+            if (index.instance(i).value(index.attribute(term)) > 0)
+                count++;
+        return count;
+    }
+
+    private Set<String> documents(Instances index, String term) {
+        Set<String> documents = new HashSet<String>();
+        for (int i = 0; i < index.numInstances(); i++)
+            if (index.instance(i).value(index.attribute(term)) > 0)
+                documents.add(new File(index.instance(i).stringValue(0)).getName());
+        return documents;
+    }
+
+    @Test
+    public void vocabularyDoesNotDependOnBlockSize() throws Exception {
+        File source = createCollection();
+        Instances small = index(source, "small", 1, -1, 2, -1, 2);
+        Instances large = index(source, "large", 4, -1, 2, -1, 2);
+
+        // common occurs in all 6 documents, so its postings are truncated
+        assertTrue(terms(small).contains("common"));
+        assertEquals(terms(small), terms(large));
+        for (String term : terms(small))
+            assertEquals(term, documents(small, term), documents(large, term));
+    }
+
+    @Test
+    public void pruningUsesCollectionStatistics() throws Exception {
+        Instances index = index(createCollection(), "target", 2, 3, 2, 5, -1);
+
+        // cf of fig is 1, df of common is 6, cf of apple and elder is 4
+        List<String> terms = terms(index);
+        assertFalse(terms.contains("fig"));
+        assertFalse(terms.contains("common"));
+        assertFalse(terms.contains("apple"));
+        assertFalse(terms.contains("elder"));
+        assertTrue(terms.contains("banana"));
+        assertEquals(2, postings(index, "banana"));
+    }
+
+    @Test
+    public void postingsAreTruncatedToMaximum() throws Exception {
+        File source = createCollection();
+        Instances index = index(source, "target", 3, -1, -1, -1, 2);
+
+        for (String term : terms(index))
+            assertTrue(term, postings(index, term) <= 2);
+        assertEquals(6, index.numInstances());
+
+        // common occurs once in every document, so the two shortest documents have the highest impact
+        assertEquals(new HashSet<String>(Arrays.asList("2", "5")), documents(index, "common"));
+
+        // the document frequencies before truncation are kept for the IDF
+        Map<String, Integer> dfs = new HashMap<String, Integer>();
+        BufferedReader in = new BufferedReader(new FileReader(new File(folder.getRoot(), "target/index.df")));
+        String line;
+        while ((line = in.readLine()) != null)
+            dfs.put(line.split("\t")[0], new Integer(line.split("\t")[1]));
+        in.close();
+        assertEquals(new Integer(6), dfs.get("common"));
+    }
+}